@@ -1,14 +1,23 @@
 package uai.helcio.compiler;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.function.UnaryOperator;
 
 import org.slf4j.event.Level;
 import picocli.CommandLine;
+import uai.helcio.t1.Automata.CompiledDFA;
+import uai.helcio.t1.TokenStream;
 import uai.helcio.t1.Tokenizer;
 import uai.helcio.t2.Parser;
 import uai.helcio.t1.entities.Token;
+import uai.helcio.t2.entities.Symbol;
+import uai.helcio.t2.generators.TableAlgorithm;
+import uai.helcio.t2.table.TableEntry;
 import uai.helcio.utils.AppLogger;
 import uai.helcio.utils.ResourcesUtils;
 
@@ -17,6 +26,30 @@ public class App implements Callable<Integer> {
     @CommandLine.Option(names = {"-l", "--log-level"}, defaultValue = "INFO")
     private Level logLevel;
 
+    /**
+     * How the parsing table is built: SLR (default), LALR, LR1 or CANONICAL_LR1.
+     */
+    @CommandLine.Option(names = {"-a", "--algorithm"}, defaultValue = "SLR")
+    private TableAlgorithm algorithm;
+
+    /**
+     * Writes the generated lexer to a lexer file, which can replace the regex file on later runs.
+     */
+    @CommandLine.Option(names = {"-c", "--compile-lexer"})
+    private Path compiledLexerFile;
+
+    /**
+     * Directory where the generated lexer and parsing table are cached, keyed by a hash of the input files.
+     */
+    @CommandLine.Option(names = {"--cache-dir"})
+    private Path cacheDir;
+
+    /**
+     * Runs the lexer, the symbol table and the parser at the same time, passing the tokens through bounded queues.
+     */
+    @CommandLine.Option(names = {"--pipeline"})
+    private boolean pipeline;
+
     @CommandLine.Parameters(index = "0")
     private Path grammarFile;
 
@@ -34,19 +67,30 @@ public class App implements Callable<Integer> {
         AppLogger.setLoggingLevel(logLevel);
 
         try {
-            List<String> regexes = ResourcesUtils.fileLinesToList(regexFile);
+            BuildCache cache = cacheDir == null ? null
+                    : BuildCache.open(cacheDir, List.of(regexFile, grammarFile, reservedWordsFile));
+
+            CompiledDFA lexer = cache == null ? buildLexer() : cache.getLexer(this::buildLexer);
+            if (compiledLexerFile != null) {
+                lexer.write(compiledLexerFile);
+            }
+            if (pipeline) {
+                return runPipeline(lexer, cache) ? 0 : 1;
+            }
+
             List<String> source = ResourcesUtils.fileLinesToList(inputFile);
-            Tokenizer tokenizer = new Tokenizer(regexes, source, false);
+            Tokenizer tokenizer = new Tokenizer(lexer, source);
             List<Token> tokens = tokenizer.tokenize();
 
-            AppLogger.logger.info("--- Fase de Projeto: Gerando Tabela SLR ---");
-            List<String> grammarFileLines = ResourcesUtils.fileLinesToList(grammarFile);
+            AppLogger.logger.info("--- Fase de Projeto: Gerando Tabela {} ---", algorithm);
+            Map<Integer, Map<Symbol, TableEntry>> parsingTable = cache == null
+                    ? buildParsingTable() : cache.getParsingTable(algorithm, this::buildParsingTable);
 
             List<String> reservedWords = ResourcesUtils.fileLinesToList(reservedWordsFile);
-            Parser parser = new Parser(grammarFileLines, reservedWords);
+            Parser parser = new Parser(parsingTable, reservedWords);
 
             AppLogger.logger.info("--- Fase de Execução: Preparando Tabela de Símbolos ---");
-            List<Token> tokens2 = parser.populateSymbolTable(tokens.stream().map(Token::toString).toList());
+            List<Token> tokens2 = parser.populateSymbolTable(tokens.iterator());
 
             AppLogger.logger.info("Tokens identificados: {}", tokens2);
             AppLogger.logger.info("Estado da Tabela de Símbolos (Pós-Varredura):");
@@ -63,6 +107,53 @@ public class App implements Callable<Integer> {
         }
     }
 
+    /**
+     * Pipelined execution: the lexer streams the input file, the symbol table classifies the tokens and the
+     * parser consumes them, each stage on its own thread. Only the tokens waiting in the channels are in memory.
+     */
+    private boolean runPipeline(CompiledDFA lexer, BuildCache cache) throws Exception {
+        AppLogger.logger.info("--- Fase de Projeto: Gerando Tabela {} ---", algorithm);
+        Map<Integer, Map<Symbol, TableEntry>> parsingTable = cache == null
+                ? buildParsingTable() : cache.getParsingTable(algorithm, this::buildParsingTable);
+
+        List<String> reservedWords = ResourcesUtils.fileLinesToList(reservedWordsFile);
+        Parser parser = new Parser(parsingTable, reservedWords);
+
+        AppLogger.logger.info("--- Iniciando Análise em Pipeline ---");
+        TokenStream source = new TokenStream(lexer, Files.newBufferedReader(inputFile, StandardCharsets.US_ASCII));
+        TokenChannel lexed = new TokenChannel();
+        TokenChannel classified = new TokenChannel();
+        Thread lexerStage = lexed.startStage("lexer", source, UnaryOperator.identity());
+        Thread symbolTableStage = classified.startStage("symbol-table", lexed, parser::toParserToken);
+
+        boolean result;
+        try {
+            result = parser.parse(classified);
+        } finally {
+            // a syntax error stops the parser early, the other stages must not wait for it
+            lexerStage.interrupt();
+            symbolTableStage.interrupt();
+            lexerStage.join();
+            symbolTableStage.join();
+            source.close();
+        }
+
+        AppLogger.logger.info("Estado da Tabela de Símbolos (Pós-Varredura):");
+        AppLogger.logger.info(parser.getSymbolTable().toString());
+        return result;
+    }
+
+    private CompiledDFA buildLexer() throws Exception {
+        if (CompiledDFA.isLexerFile(regexFile)) {
+            return CompiledDFA.load(regexFile);
+        }
+        return new Tokenizer(ResourcesUtils.fileLinesToList(regexFile), List.of(), false).getLexer();
+    }
+
+    private Map<Integer, Map<Symbol, TableEntry>> buildParsingTable() throws Exception {
+        return Parser.generateParsingTable(ResourcesUtils.fileLinesToList(grammarFile), algorithm);
+    }
+
     static void main(String[] args) {
         System.exit(new CommandLine(new App()).execute(args));
     }
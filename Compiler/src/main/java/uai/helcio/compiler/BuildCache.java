@@ -0,0 +1,124 @@
+package uai.helcio.compiler;
+
+import uai.helcio.t1.Automata.CompiledDFA;
+import uai.helcio.t2.entities.Symbol;
+import uai.helcio.t2.generators.TableAlgorithm;
+import uai.helcio.t2.table.ParsingTableFile;
+import uai.helcio.t2.table.TableEntry;
+import uai.helcio.utils.AppLogger;
+import uai.helcio.utils.ResourcesUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * On-disk cache of the generated lexer and parsing table.
+ * <p>
+ * Entries live in a subdirectory named after a hash of the input files (regexes, grammar and reserved words),
+ * so a run with the same inputs reuses them and any change in the inputs transparently leads to a new entry.
+ * </p>
+ */
+public class BuildCache {
+
+    /**
+     * Mixed into the hash, so entries written with another file layout are never read back.
+     */
+    private static final String FORMAT = "lexer-v" + CompiledDFA.VERSION + "/table-v" + ParsingTableFile.VERSION;
+
+    private static final String LEXER_FILE = "lexer.bin";
+    private static final String TABLE_FILE = "table-%s.bin";
+
+    private final Path directory;
+
+    private BuildCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the cache entry matching the given inputs.
+     *
+     * @param cacheDir root directory of the cache
+     * @param inputs   every file the cached artifacts are generated from
+     * @return the cache entry for these inputs
+     * @throws IOException if the inputs can't be read
+     */
+    public static BuildCache open(Path cacheDir, List<Path> inputs) throws IOException {
+        String key = ResourcesUtils.hashFiles(FORMAT, inputs);
+        AppLogger.logger.debug("Build cache key: {}", key);
+        return new BuildCache(cacheDir.resolve(key));
+    }
+
+    /**
+     * Loads the cached lexer, or builds and stores it when there's none.
+     *
+     * @param builder generates the lexer on a cache miss
+     * @return the lexer
+     */
+    public CompiledDFA getLexer(Callable<CompiledDFA> builder) throws Exception {
+        Path file = directory.resolve(LEXER_FILE);
+        if (Files.exists(file)) {
+            try {
+                return CompiledDFA.load(file);
+            } catch (IOException e) {
+                AppLogger.logger.warn("Ignoring unreadable cached lexer {}: {}", file, e.getMessage());
+            }
+        }
+        CompiledDFA lexer = builder.call();
+        store(file, tmp -> lexer.write(tmp));
+        return lexer;
+    }
+
+    /**
+     * Loads the cached parsing table, or generates and stores it when there's none.
+     * Each algorithm has its own entry, as they generate different tables from the same grammar.
+     *
+     * @param algorithm the algorithm the table is built with
+     * @param builder   generates the parsing table on a cache miss
+     * @return the parsing table
+     */
+    public Map<Integer, Map<Symbol, TableEntry>> getParsingTable(
+            TableAlgorithm algorithm, Callable<Map<Integer, Map<Symbol, TableEntry>>> builder) throws Exception {
+        Path file = directory.resolve(TABLE_FILE.formatted(algorithm.name().toLowerCase()));
+        if (Files.exists(file)) {
+            try {
+                Map<Integer, Map<Symbol, TableEntry>> table = ParsingTableFile.read(file);
+                AppLogger.logger.info("Parsing table loaded from cache {} ({} states)", file, table.size());
+                return table;
+            } catch (IOException e) {
+                AppLogger.logger.warn("Ignoring unreadable cached parsing table {}: {}", file, e.getMessage());
+            }
+        }
+        Map<Integer, Map<Symbol, TableEntry>> table = builder.call();
+        store(file, tmp -> ParsingTableFile.write(table, tmp));
+        return table;
+    }
+
+    /**
+     * Writes an entry to a temporary file and moves it into place, so concurrent runs never see a partial file.
+     * Failing to store only costs a rebuild on the next run.
+     */
+    private void store(Path file, FileWriter writer) {
+        try {
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try {
+                writer.write(tmp);
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            AppLogger.logger.warn("Couldn't store {} in the build cache: {}", file, e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    private interface FileWriter {
+        void write(Path file) throws IOException;
+    }
+}
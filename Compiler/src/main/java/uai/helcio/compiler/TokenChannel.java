@@ -0,0 +1,140 @@
+package uai.helcio.compiler;
+
+import uai.helcio.t1.entities.Token;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded channel of tokens between two pipeline stages running on different threads.
+ * <p>
+ * The producer sends tokens, which travel in small batches so the queue is not touched for every token,
+ * and the consumer reads them as an {@link Iterator}. As the queue is bounded, a fast producer blocks
+ * instead of piling tokens up, so only a few batches are held in memory at any time.
+ * A failure in the producer is rethrown on the consumer side once the tokens before it were read.
+ * </p>
+ */
+public class TokenChannel implements Iterator<Token> {
+    public static final int DEFAULT_CAPACITY = 64;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    // sent once the producer is done, compared by reference
+    private static final List<Token> END = new ArrayList<>();
+
+    private final BlockingQueue<List<Token>> queue;
+    private final int batchSize;
+    private volatile Throwable failure;
+
+    // producer side
+    private List<Token> outgoing;
+
+    // consumer side
+    private List<Token> incoming = List.of();
+    private int index;
+    private boolean ended;
+
+    public TokenChannel() {
+        this(DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param capacity  how many batches may wait in the channel
+     * @param batchSize how many tokens travel together
+     */
+    public TokenChannel(int capacity, int batchSize) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.outgoing = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * Starts a stage on a virtual thread, sending every token of the source through the channel
+     *
+     * @param name   the thread name
+     * @param source the tokens produced by the previous stage
+     * @param stage  the work done on each token
+     * @return the stage thread, interrupting it stops the stage
+     */
+    public Thread startStage(String name, Iterator<Token> source, UnaryOperator<Token> stage) {
+        return Thread.ofVirtual().name(name).start(() -> {
+            try {
+                while (source.hasNext()) {
+                    send(stage.apply(source.next()));
+                }
+                close();
+            } catch (InterruptedException e) {
+                // the consumer gave up, nobody reads the channel anymore
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException | Error e) {
+                fail(e);
+            }
+        });
+    }
+
+    public void send(Token token) throws InterruptedException {
+        outgoing.add(token);
+        if (outgoing.size() == batchSize) {
+            queue.put(outgoing);
+            outgoing = new ArrayList<>(batchSize);
+        }
+    }
+
+    /**
+     * Sends the pending tokens and tells the consumer there won't be more
+     */
+    public void close() throws InterruptedException {
+        if (!outgoing.isEmpty()) {
+            queue.put(outgoing);
+            outgoing = new ArrayList<>(batchSize);
+        }
+        queue.put(END);
+    }
+
+    /**
+     * Ends the channel because the producer failed, the error reaches the consumer after the tokens already sent
+     */
+    public void fail(Throwable error) {
+        failure = error;
+        try {
+            close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (index == incoming.size()) {
+            if (ended) {
+                return false;
+            }
+            try {
+                incoming = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for tokens", e);
+            }
+            index = 0;
+            if (incoming == END) {
+                ended = true;
+                if (failure != null) {
+                    throw new IllegalStateException("A pipeline stage failed", failure);
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Token next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return incoming.get(index++);
+    }
+}
@@ -0,0 +1,163 @@
+package uai.helcio.compiler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+import uai.helcio.t1.Automata.CompiledDFA;
+import uai.helcio.t2.entities.Symbol;
+import uai.helcio.t2.table.ParsingTableFile;
+import uai.helcio.t2.table.TableEntry;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AppTest {
+    private static final String TEST_DIR = "test";
+    private static final String GRAMMAR_FILE = "grammar.txt";
+    private static final String REGEX_FILE = "regexes.txt";
+    private static final String RESERVED_WORDS_FILE = "reserved.txt";
+    private static final String SOURCE_FILE = "input.txt";
+
+    @Test
+    public void testCompileLexer(@TempDir Path tempDir) throws IOException {
+        Path lexerFile = tempDir.resolve("lexer.bin");
+        assertEquals(0, run("-c", lexerFile.toString()));
+        CompiledDFA.load(lexerFile);
+
+        // the lexer file replaces the regex file
+        assertEquals(0, new CommandLine(new App()).execute("-l", "WARN", resource(GRAMMAR_FILE),
+                lexerFile.toString(), resource(RESERVED_WORDS_FILE), resource(SOURCE_FILE)));
+    }
+
+    @Test
+    public void testCacheDir(@TempDir Path cacheDir) throws IOException {
+        assertEquals(0, run("--cache-dir", cacheDir.toString()));
+        Path lexerFile = findCached(cacheDir, "lexer.bin");
+        Path tableFile = findCached(cacheDir, "table-slr.bin");
+        FileTime lexerTime = Files.getLastModifiedTime(lexerFile);
+        FileTime tableTime = Files.getLastModifiedTime(tableFile);
+
+        // a second run reads both entries back instead of writing them again
+        assertEquals(0, run("--cache-dir", cacheDir.toString()));
+        assertEquals(lexerTime, Files.getLastModifiedTime(lexerFile));
+        assertEquals(tableTime, Files.getLastModifiedTime(tableFile));
+
+        // every algorithm has its own table, next to the same lexer
+        assertEquals(0, run("--cache-dir", cacheDir.toString(), "-a", "LALR"));
+        assertEquals(tableFile.resolveSibling("table-lalr.bin"), findCached(cacheDir, "table-lalr.bin"));
+        assertEquals(lexerTime, Files.getLastModifiedTime(lexerFile));
+    }
+
+    @Test
+    public void testCorruptCacheEntries(@TempDir Path cacheDir) throws IOException {
+        assertEquals(0, run("--cache-dir", cacheDir.toString()));
+        Path lexerFile = findCached(cacheDir, "lexer.bin");
+        Path tableFile = findCached(cacheDir, "table-slr.bin");
+
+        for (Path cached : List.of(lexerFile, tableFile)) {
+            byte[] valid = Files.readAllBytes(cached);
+            List<byte[]> damaged = List.of(
+                    Arrays.copyOf(valid, valid.length / 2),
+                    Arrays.copyOf(valid, valid.length + 4),
+                    // the first count after the magic number and the version
+                    ByteBuffer.wrap(valid.clone()).putInt(2 * Integer.BYTES, -1).array());
+            for (byte[] bytes : damaged) {
+                Files.write(cached, bytes);
+                assertEquals(0, run("--cache-dir", cacheDir.toString()));
+                assertEquals(valid.length, Files.size(cached));
+            }
+        }
+        CompiledDFA.load(lexerFile);
+        ParsingTableFile.read(tableFile);
+    }
+
+    @Test
+    public void testCorruptParsingTable(@TempDir Path cacheDir) throws IOException {
+        assertEquals(0, run("--cache-dir", cacheDir.toString()));
+        Path tableFile = findCached(cacheDir, "table-slr.bin");
+        byte[] valid = Files.readAllBytes(tableFile);
+        Map<Integer, Map<Symbol, TableEntry>> table = ParsingTableFile.read(tableFile);
+
+        // a state numbered past the state count
+        Map<Integer, Map<Symbol, TableEntry>> farState = new HashMap<>(table);
+        farState.put(1_000_000, farState.remove(table.size() - 1));
+        // a goto to a state that doesn't exist
+        Map<Symbol, TableEntry> row = new HashMap<>(table.get(0));
+        Symbol nonTerminal = row.keySet().stream().filter(Symbol::isNonTerminal).findFirst().orElseThrow();
+        row.put(nonTerminal, TableEntry.shift(1_000_000));
+        Map<Integer, Map<Symbol, TableEntry>> farGoto = new HashMap<>(table);
+        farGoto.put(0, row);
+
+        List<byte[]> damaged = new ArrayList<>();
+        for (Map<Integer, Map<Symbol, TableEntry>> damagedTable : List.of(farState, farGoto)) {
+            ParsingTableFile.write(damagedTable, tableFile);
+            damaged.add(Files.readAllBytes(tableFile));
+        }
+        // header: magic, version, production count, reduced productions, then the first one as
+        // (index, kind, representation, body size)
+        damaged.add(ByteBuffer.wrap(valid.clone()).putInt(2 * Integer.BYTES, Integer.MAX_VALUE).array());
+        damaged.add(ByteBuffer.wrap(valid.clone()).putInt(4 * Integer.BYTES, -1).array());
+        int reprLength = Short.toUnsignedInt(ByteBuffer.wrap(valid).getShort(5 * Integer.BYTES + 1));
+        int bodySizeOffset = 5 * Integer.BYTES + 1 + Short.BYTES + reprLength;
+        damaged.add(ByteBuffer.wrap(valid.clone()).putInt(bodySizeOffset, Integer.MAX_VALUE).array());
+
+        for (byte[] bytes : damaged) {
+            Files.write(tableFile, bytes);
+            assertEquals(0, run("--cache-dir", cacheDir.toString()));
+            assertEquals(valid.length, Files.size(tableFile));
+        }
+        ParsingTableFile.read(tableFile);
+    }
+
+    @Test
+    public void testPipeline(@TempDir Path tempDir) throws IOException {
+        Path invalidSource = tempDir.resolve("invalid.txt");
+        Files.writeString(invalidSource,
+                Files.readString(Path.of(resource(SOURCE_FILE))).replace("x := 0", "x := := 0"));
+
+        // both executions give the same verdict, for a valid and an invalid source
+        assertEquals(0, runOn(resource(SOURCE_FILE)));
+        assertEquals(0, runOn(resource(SOURCE_FILE), "--pipeline"));
+        assertEquals(1, runOn(invalidSource.toString()));
+        assertEquals(1, runOn(invalidSource.toString(), "--pipeline"));
+    }
+
+    static int run(String... options) {
+        return runOn(resource(SOURCE_FILE), options);
+    }
+
+    static int runOn(String sourceFile, String... options) {
+        List<String> args = Stream.concat(
+                Stream.of("-l", "WARN"),
+                Stream.concat(Arrays.stream(options),
+                        Stream.of(resource(GRAMMAR_FILE), resource(REGEX_FILE), resource(RESERVED_WORDS_FILE), sourceFile)))
+                .toList();
+        return new CommandLine(new App()).execute(args.toArray(String[]::new));
+    }
+
+    static String resource(String fileName) {
+        try {
+            return Path.of(AppTest.class.getClassLoader().getResource(TEST_DIR + "/" + fileName).toURI()).toString();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Path findCached(Path cacheDir, String fileName) throws IOException {
+        try (Stream<Path> files = Files.walk(cacheDir)) {
+            return files.filter(file -> file.getFileName().toString().equals(fileName)).findFirst().orElseThrow();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package uai.helcio.compiler;
+
+import org.junit.jupiter.api.Test;
+import uai.helcio.t1.entities.Token;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TokenChannelTest {
+
+    @Test
+    public void testEndOfStream() throws InterruptedException {
+        // a partial batch, a full one and nothing at all
+        for (int count : List.of(5, 8, 0)) {
+            List<Token> sent = tokens(count);
+            TokenChannel channel = new TokenChannel(2, 4);
+            Thread stage = channel.startStage("producer", sent.iterator(), UnaryOperator.identity());
+
+            assertEquals(sent, drain(channel));
+            assertFalse(channel.hasNext());
+            assertThrows(NoSuchElementException.class, channel::next);
+            stage.join();
+        }
+    }
+
+    @Test
+    public void testStageFailure() throws InterruptedException {
+        List<Token> sent = tokens(6);
+        Iterator<Token> failingLexer = new Iterator<>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Token next() {
+                if (index == sent.size()) {
+                    throw new UncheckedIOException(new IOException("read error"));
+                }
+                return sent.get(index++);
+            }
+        };
+        TokenChannel lexed = new TokenChannel(2, 4);
+        TokenChannel classified = new TokenChannel(2, 4);
+        Thread lexerStage = lexed.startStage("lexer", failingLexer, UnaryOperator.identity());
+        Thread symbolTableStage = classified.startStage("symbol-table", lexed, UnaryOperator.identity());
+
+        // the tokens before the failure still arrive, then the failure crosses both channels
+        List<Token> received = new ArrayList<>();
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> {
+            while (classified.hasNext()) {
+                received.add(classified.next());
+            }
+        });
+        assertEquals(sent, received);
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        assertInstanceOf(UncheckedIOException.class, error.getCause().getCause());
+        lexerStage.join();
+        symbolTableStage.join();
+    }
+
+    private static List<Token> tokens(int count) {
+        return IntStream.range(0, count).mapToObj(i -> new Token("id", "x" + i)).toList();
+    }
+
+    private static List<Token> drain(Iterator<Token> channel) {
+        List<Token> tokens = new ArrayList<>();
+        channel.forEachRemaining(tokens::add);
+        return tokens;
+    }
+}